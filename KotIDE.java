@@ -4,6 +4,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -11,6 +12,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,11 +54,20 @@ public class KotIDE {
 
         KotInterpreter interpreter = new KotInterpreter(outputArea, terminalArea);
 
+        // Programs and terminal lines share one worker thread so they never run on the EDT
+        // and always see the interpreter's session state in submission order.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
         runButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
                 String code = codeArea.getText();
-                interpreter.interpret(code);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        interpreter.interpret(code);
+                    }
+                });
             }
         });
 
@@ -83,11 +96,12 @@ public class KotIDE {
                     String terminalInput = terminalArea.getText().trim();
                     terminalArea.setText("");
 
-                    if (terminalInput.equals("clear")) {
-                        outputArea.setText("");
-                    } else {
-                        outputArea.append("Unknown command: " + terminalInput + "\n");
-                    }
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            interpreter.repl(terminalInput);
+                        }
+                    });
                 }
             }
         });
@@ -102,6 +116,11 @@ class KotInterpreter {
     private final JTextArea terminalArea;
     private final Map<String, Object> variables;
     private final Set<String> keywords;
+    private static final int DEFAULT_TIME_ITERATIONS = 1000;
+    private static final int MAX_TIME_ITERATIONS = 1_000_000;
+    private boolean skipBlock;
+    private boolean muted;
+    private boolean failed;
 
     public KotInterpreter(JTextArea outputArea, JTextArea terminalArea) {
         this.outputArea = outputArea;
@@ -111,11 +130,11 @@ class KotInterpreter {
     }
 
     public void interpret(String code) {
-        outputArea.setText("");
+        clearOutput();
         variables.clear();
+        skipBlock = false;
 
         String[] lines = code.split("\\n");
-        boolean skipBlock = false;
 
         for (String line : lines) {
             line = line.trim();
@@ -124,43 +143,316 @@ class KotInterpreter {
                 continue;
             }
 
-            if (skipBlock) {
-                if (line.equals("}")) {
-                    skipBlock = false;
+            if (!executeLine(line)) {
+                print("Unknown command: " + line + "\n");
+            }
+        }
+    }
+
+    public void repl(String line) {
+        line = line.trim();
+
+        if (line.isEmpty()) {
+            return;
+        }
+
+        if (line.equals("clear")) {
+            clearOutput();
+            return;
+        }
+
+        print("> " + line + "\n");
+
+        if (line.equals("vars")) {
+            handleVarsCommand();
+            return;
+        }
+
+        if (line.equals("reset")) {
+            variables.clear();
+            skipBlock = false;
+            return;
+        }
+
+        if (skipBlock) {
+            if (!line.equals("}")) {
+                print("(skipped: inside false if block)\n");
+            }
+            executeLine(line);
+            return;
+        }
+
+        if (line.equals("}")) {
+            return;
+        }
+
+        if (isTimeCommand(line)) {
+            handleTimeCommand(line);
+        } else if (!executeLine(line)) {
+            String result = evaluateReplValue(line);
+            print((isReplError(line, result) ? "Unknown command: " + line : result) + "\n");
+        }
+    }
+
+    // Bare names print the variable as-is, so string, bool and list values are shown too.
+    private String evaluateReplValue(String expression) {
+        if (variables.containsKey(expression)) {
+            return String.valueOf(variables.get(expression));
+        }
+        return evaluateExpression(expression);
+    }
+
+    private boolean isReplError(String expression, String result) {
+        return !variables.containsKey(expression) && isErrorResult(result);
+    }
+
+    // A variable may be named time, so "time = 4" or "time + 1" is left to the statement and
+    // expression paths; only text after "time " that does not start with an operator is timed.
+    private boolean isTimeCommand(String line) {
+        if (line.equals("time") || line.startsWith("time<")) {
+            return true;
+        }
+        if (!line.startsWith("time ")) {
+            return false;
+        }
+        String rest = line.substring(5).trim();
+        return !rest.isEmpty() && "=+-*/^".indexOf(rest.charAt(0)) == -1;
+    }
+
+    private boolean executeLine(String line) {
+        if (skipBlock) {
+            if (line.equals("}")) {
+                skipBlock = false;
+            }
+            return true;
+        }
+
+        if (line.startsWith("int<") && line.contains(">")) {
+            handleIntDeclaration(line);
+        } else if (line.startsWith("double<") && line.contains(">")) {
+            handleDoubleDeclaration(line);
+        } else if (line.startsWith("string<") && line.contains(">")) {
+            handleStringDeclaration(line);
+        } else if (line.startsWith("bool<") && line.contains(">")) {
+            handleBoolDeclaration(line);
+        } else if (line.startsWith("<in>(") && line.endsWith(")")) {
+            handleInput(line);
+        } else if (line.startsWith("<in>(") && line.contains(").to<") && line.endsWith(">")) {
+            handleTypedInput(line);
+        } else if (line.startsWith("type<") && line.contains(">")) {
+            handleTypeCommand(line);
+        } else if (line.startsWith("list<") && line.contains(")")) {
+            handleListDeclaration(line);
+        } else if (line.startsWith("if (") && line.contains(") {")) {
+            skipBlock = !handleIfStatement(line);
+        } else if (line.startsWith("(") && line.endsWith(")")) {
+            handlePrintCommand(line);
+        } else if (line.startsWith("f(") && line.endsWith(")")) {
+            handleInlinePrint(line);
+        } else if (line.contains("=")) {
+            handleAssignment(line);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    // The interpreter runs on a worker thread, so every Swing call is handed back to the EDT.
+    private void print(String text) {
+        if (!muted) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    outputArea.append(text);
                 }
-                continue;
+            });
+        }
+    }
+
+    private void error(String text) {
+        failed = true;
+        print(text);
+    }
+
+    private void clearOutput() {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                outputArea.setText("");
             }
+        });
+    }
+
+    private String promptInput(String message) {
+        String[] inputValue = new String[1];
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    inputValue[0] = JOptionPane.showInputDialog(message);
+                }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (InvocationTargetException e) {
+            error("Error reading input: " + e.getCause() + "\n");
+        }
+        return inputValue[0];
+    }
+
+    private void handleVarsCommand() {
+        if (variables.isEmpty()) {
+            print("No variables defined.\n");
+            return;
+        }
+
+        List<String> names = new ArrayList<>(variables.keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            Object value = variables.get(name);
+            print(name + " (" + value.getClass().getSimpleName() + ") = " + value + "\n");
+        }
+    }
 
-            if (line.startsWith("int<") && line.contains(">")) {
-                handleIntDeclaration(line);
-            } else if (line.startsWith("double<") && line.contains(">")) {
-                handleDoubleDeclaration(line);
-            } else if (line.startsWith("string<") && line.contains(">")) {
-                handleStringDeclaration(line);
-            } else if (line.startsWith("bool<") && line.contains(">")) {
-                handleBoolDeclaration(line);
-            } else if (line.startsWith("<in>(") && line.endsWith(")")) {
-                handleInput(line);
-            } else if (line.startsWith("<in>(") && line.contains(").to<") && line.endsWith(">")) {
-                handleTypedInput(line);
-            } else if (line.startsWith("type<") && line.contains(">")) {
-                handleTypeCommand(line);
-            } else if (line.startsWith("list<") && line.contains(")")) {
-                handleListDeclaration(line);
-            } else if (line.startsWith("if (") && line.contains(") {")) {
-                skipBlock = !handleIfStatement(line);
-            } else if (line.startsWith("(") && line.endsWith(")")) {
-                handlePrintCommand(line);
-            } else if (line.startsWith("f(") && line.endsWith(")")) {
-                handleInlinePrint(line);
-            } else if (line.contains("=")) {
-                handleAssignment(line);
+    // time <statement>, time<N> <statement> or time<N, W> <statement>. The warm-up count W
+    // defaults to N. The statement runs against the live session, so assignments keep their
+    // effect after every one of the W + N runs.
+    private void handleTimeCommand(String line) {
+        try {
+            int iterations = DEFAULT_TIME_ITERATIONS;
+            int warmups = -1;
+            String statement;
+
+            if (line.startsWith("time<") && line.contains(">")) {
+                int endIndex = line.indexOf(">");
+                String[] counts = line.substring(5, endIndex).split(",");
+                iterations = Integer.parseInt(counts[0].trim());
+                if (counts.length > 1) {
+                    warmups = Integer.parseInt(counts[1].trim());
+                }
+                statement = line.substring(endIndex + 1).trim();
+            } else if (line.startsWith("time ")) {
+                statement = line.substring(5).trim();
             } else {
-                outputArea.append("Unknown command: " + line + "\n");
+                statement = "";
+            }
+
+            if (warmups == -1) {
+                warmups = iterations;
+            }
+
+            if (iterations <= 0 || warmups <= 0 || statement.isEmpty()) {
+                print("Usage: time<N, W> <statement or expression> (N timed runs, default "
+                        + DEFAULT_TIME_ITERATIONS + "; W warm-up runs, default N; all runs update the session)\n");
+                return;
+            }
+
+            // Runs share the single worker thread with Run and later REPL lines and cannot be cancelled.
+            if (iterations > MAX_TIME_ITERATIONS || warmups > MAX_TIME_ITERATIONS) {
+                error("Error: time allows at most " + MAX_TIME_ITERATIONS + " timed and warm-up runs.\n");
+                return;
+            }
+
+            if (statement.startsWith("<in>(") || statement.startsWith("if (") || statement.equals("}")) {
+                error("Error: Cannot time command: " + statement + "\n");
+                return;
+            }
+
+            boolean savedSkipBlock = skipBlock;
+            skipBlock = false;
+            failed = false;
+
+            // The first warm-up run is shown, so a failing statement is reported instead of timed.
+            boolean isStatement = executeLine(statement);
+            String result = isStatement ? null : evaluateReplValue(statement);
+
+            if (result != null) {
+                print(result + "\n");
+            }
+            if (failed || (result != null && isReplError(statement, result))) {
+                skipBlock = savedSkipBlock;
+                print("Timing skipped: " + statement + " failed.\n");
+                return;
             }
+
+            long[] samples = new long[iterations];
+            int failedRun = 0;
+            muted = true;
+            try {
+                // Earlier runs can change the session, so stop at the first run that fails.
+                for (int i = 1; i < warmups && failedRun == 0; i++) {
+                    runTimed(statement, isStatement);
+                    if (failed) {
+                        failedRun = i + 1;
+                    }
+                }
+
+                for (int i = 0; i < iterations && failedRun == 0; i++) {
+                    long start = System.nanoTime();
+                    runTimed(statement, isStatement);
+                    samples[i] = System.nanoTime() - start;
+                    if (failed) {
+                        failedRun = warmups + i + 1;
+                    }
+                }
+            } finally {
+                muted = false;
+                skipBlock = savedSkipBlock;
+            }
+
+            if (failedRun != 0) {
+                error("Timing aborted: " + statement + " failed on run " + failedRun + ".\n");
+                return;
+            }
+
+            printTimings(samples, warmups);
+        } catch (Exception e) {
+            error("Error parsing time command: " + line + "\n");
         }
     }
 
+    private void runTimed(String statement, boolean isStatement) {
+        if (isStatement) {
+            executeLine(statement);
+        } else if (isReplError(statement, evaluateReplValue(statement))) {
+            failed = true;
+        }
+    }
+
+    private boolean isErrorResult(String result) {
+        return result.startsWith("Error") || result.startsWith("Invalid");
+    }
+
+    private void printTimings(long[] samples, int warmups) {
+        long total = 0;
+        for (long sample : samples) {
+            total += sample;
+        }
+        Arrays.sort(samples);
+
+        print(String.format("%d iterations (%d warm-up): mean %s, p50 %s, p90 %s, p99 %s, max %s%n",
+                samples.length, warmups,
+                formatNanos((double) total / samples.length),
+                formatNanos(percentile(samples, 50)),
+                formatNanos(percentile(samples, 90)),
+                formatNanos(percentile(samples, 99)),
+                formatNanos(samples[samples.length - 1])));
+    }
+
+    private double percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private String formatNanos(double nanos) {
+        if (nanos >= 1_000_000) {
+            return String.format("%.3f ms", nanos / 1_000_000);
+        } else if (nanos >= 1_000) {
+            return String.format("%.3f us", nanos / 1_000);
+        }
+        return String.format("%.0f ns", nanos);
+    }
+
     private void handleInlinePrint(String line) {
         try {
 
@@ -175,15 +467,20 @@ class KotInterpreter {
                 String expression = matcher.group(1);
                 String evaluatedExpression = evaluateExpression(expression);
 
+                if (isErrorResult(evaluatedExpression)) {
+                    error("Error in inline print: " + evaluatedExpression + " for {" + expression + "}\n");
+                    return;
+                }
+
                 matcher.appendReplacement(result, Matcher.quoteReplacement(evaluatedExpression));
             }
 
             matcher.appendTail(result);
 
-            outputArea.append(result.toString() + "\n");
+            print(result.toString() + "\n");
 
         } catch (Exception e) {
-            outputArea.append("Error in inline print: " + line + "\n");
+            error("Error in inline print: " + line + "\n");
         }
     }
 
@@ -324,7 +621,7 @@ class KotInterpreter {
         try {
             String[] parts = line.split("=");
             if (parts.length != 2) {
-                outputArea.append("Invalid assignment: " + line + "\n");
+                error("Invalid assignment: " + line + "\n");
                 return;
             }
 
@@ -332,20 +629,20 @@ class KotInterpreter {
             String value = parts[1].trim();
 
             if (!variables.containsKey(varName)) {
-                outputArea.append("Undefined variable: " + varName + "\n");
+                error("Undefined variable: " + varName + "\n");
                 return;
             }
 
             Object resolvedValue = resolveValue(value);
             if (resolvedValue == null) {
-                outputArea.append("Error resolving value for assignment: " + value + "\n");
+                error("Error resolving value for assignment: " + value + "\n");
                 return;
             }
 
             variables.put(varName, resolvedValue);
 
         } catch (Exception e) {
-            outputArea.append("Error in assignment: " + line + "\n");
+            error("Error in assignment: " + line + "\n");
         }
     }
 
@@ -371,13 +668,13 @@ class KotInterpreter {
                 operator = "<";
 
             if (operator.isEmpty()) {
-                outputArea.append("Invalid condition: " + condition + "\n");
+                error("Invalid condition: " + condition + "\n");
                 return false;
             }
 
             String[] parts = condition.split("\\Q" + operator + "\\E");
             if (parts.length != 2) {
-                outputArea.append("Error parsing condition: " + condition + "\n");
+                error("Error parsing condition: " + condition + "\n");
                 return false;
             }
 
@@ -388,13 +685,13 @@ class KotInterpreter {
             Object rightValue = resolveValue(right);
 
             if (leftValue == null || rightValue == null) {
-                outputArea.append("Error: Undefined variable in condition.\n");
+                error("Error: Undefined variable in condition.\n");
                 return false;
             }
 
             return compareValues(leftValue, rightValue, operator);
         } catch (Exception e) {
-            outputArea.append("Error parsing if statement: " + line + "\n");
+            error("Error parsing if statement: " + line + "\n");
             return false;
         }
     }
@@ -417,11 +714,11 @@ class KotInterpreter {
                 case "<=":
                     return leftNum <= rightNum;
                 default:
-                    outputArea.append("Invalid operator: " + operator + "\n");
+                    error("Invalid operator: " + operator + "\n");
                     return false;
             }
         } catch (NumberFormatException e) {
-            outputArea.append("Error comparing values: " + leftValue + " and " + rightValue + "\n");
+            error("Error comparing values: " + leftValue + " and " + rightValue + "\n");
             return false;
         }
     }
@@ -449,7 +746,7 @@ class KotInterpreter {
             String varName = line.substring(startIndex, endIndex);
 
             if (keywords.contains(varName)) {
-                outputArea.append("Error: " + varName + " is a reserved keyword.\n");
+                error("Error: " + varName + " is a reserved keyword.\n");
                 return;
             }
 
@@ -458,7 +755,7 @@ class KotInterpreter {
 
             variables.put(varName, value);
         } catch (Exception e) {
-            outputArea.append("Error parsing line: " + line + "\n");
+            error("Error parsing line: " + line + "\n");
         }
     }
 
@@ -469,7 +766,7 @@ class KotInterpreter {
             String varName = line.substring(startIndex, endIndex);
 
             if (keywords.contains(varName)) {
-                outputArea.append("Error: " + varName + " is a reserved keyword.\n");
+                error("Error: " + varName + " is a reserved keyword.\n");
                 return;
             }
 
@@ -478,7 +775,7 @@ class KotInterpreter {
 
             variables.put(varName, value);
         } catch (Exception e) {
-            outputArea.append("Error parsing line: " + line + "\n");
+            error("Error parsing line: " + line + "\n");
         }
     }
 
@@ -489,7 +786,7 @@ class KotInterpreter {
             String varName = line.substring(startIndex, endIndex);
 
             if (keywords.contains(varName)) {
-                outputArea.append("Error: " + varName + " is a reserved keyword.\n");
+                error("Error: " + varName + " is a reserved keyword.\n");
                 return;
             }
 
@@ -502,7 +799,7 @@ class KotInterpreter {
 
             variables.put(varName, value);
         } catch (Exception e) {
-            outputArea.append("Error parsing line: " + line + "\n");
+            error("Error parsing line: " + line + "\n");
         }
     }
 
@@ -513,7 +810,7 @@ class KotInterpreter {
             String varName = line.substring(startIndex, endIndex);
 
             if (keywords.contains(varName)) {
-                outputArea.append("Error: " + varName + " is a reserved keyword.\n");
+                error("Error: " + varName + " is a reserved keyword.\n");
                 return;
             }
 
@@ -524,17 +821,17 @@ class KotInterpreter {
                 boolean value = Boolean.parseBoolean(valueStr);
                 variables.put(varName, value);
             } else {
-                outputArea.append("Error: Invalid boolean value: " + valueStr + "\n");
+                error("Error: Invalid boolean value: " + valueStr + "\n");
             }
         } catch (Exception e) {
-            outputArea.append("Error parsing line: " + line + "\n");
+            error("Error parsing line: " + line + "\n");
         }
     }
 
     private void handleInput(String line) {
         try {
             String varName = line.substring(5, line.length() - 1).trim();
-            String inputValue = JOptionPane.showInputDialog("Enter value for " + varName + ":");
+            String inputValue = promptInput("Enter value for " + varName + ":");
 
             if (inputValue.contains(".")) {
                 variables.put(varName, Double.parseDouble(inputValue));
@@ -542,7 +839,7 @@ class KotInterpreter {
                 variables.put(varName, Integer.parseInt(inputValue));
             }
         } catch (Exception e) {
-            outputArea.append("Error parsing input command: " + line + "\n");
+            error("Error parsing input command: " + line + "\n");
         }
     }
 
@@ -555,12 +852,11 @@ class KotInterpreter {
             String targetType = line.substring(line.indexOf(").to<") + 5, line.length() - 1).trim();
 
             if (keywords.contains(varName)) {
-                outputArea.append("Error: " + varName + " is a reserved keyword.\n");
+                error("Error: " + varName + " is a reserved keyword.\n");
                 return;
             }
 
-            String inputValue = JOptionPane
-                    .showInputDialog("Enter value for " + varName + " (type: " + targetType + "):");
+            String inputValue = promptInput("Enter value for " + varName + " (type: " + targetType + "):");
             if (inputValue != null) {
                 Object value = null;
 
@@ -578,14 +874,14 @@ class KotInterpreter {
                         value = Boolean.parseBoolean(inputValue);
                         break;
                     default:
-                        outputArea.append("Error: Unsupported target type " + targetType + ".\n");
+                        error("Error: Unsupported target type " + targetType + ".\n");
                         return;
                 }
 
                 variables.put(varName, value);
             }
         } catch (Exception e) {
-            outputArea.append("Error parsing type casting input command: " + line + "\n");
+            error("Error parsing type casting input command: " + line + "\n");
         }
     }
 
@@ -597,12 +893,12 @@ class KotInterpreter {
 
             if (variables.containsKey(varName)) {
                 Object value = variables.get(varName);
-                outputArea.append(varName + " is of type: " + value.getClass().getSimpleName() + "\n");
+                print(varName + " is of type: " + value.getClass().getSimpleName() + "\n");
             } else {
-                outputArea.append("Undefined variable: " + varName + "\n");
+                error("Undefined variable: " + varName + "\n");
             }
         } catch (Exception e) {
-            outputArea.append("Error parsing type command: " + line + "\n");
+            error("Error parsing type command: " + line + "\n");
         }
     }
 
@@ -613,7 +909,7 @@ class KotInterpreter {
             String varName = line.substring(startIndex, endIndex);
 
             if (keywords.contains(varName)) {
-                outputArea.append("Error: " + varName + " is a reserved keyword.\n");
+                error("Error: " + varName + " is a reserved keyword.\n");
                 return;
             }
 
@@ -629,14 +925,14 @@ class KotInterpreter {
                 if (list.size() < maxSize) {
                     list.add(element.trim());
                 } else {
-                    outputArea.append("Warning: List exceeded max size. Remaining elements ignored.\n");
+                    print("Warning: List exceeded max size. Remaining elements ignored.\n");
                     break;
                 }
             }
 
             variables.put(varName, list);
         } catch (Exception e) {
-            outputArea.append("Error parsing list command: " + line + "\n");
+            error("Error parsing list command: " + line + "\n");
         }
     }
 
@@ -646,15 +942,15 @@ class KotInterpreter {
 
             if (content.startsWith("\"") && content.endsWith("\"")) {
 
-                outputArea.append(content.substring(1, content.length() - 1) + "\n");
+                print(content.substring(1, content.length() - 1) + "\n");
             } else if (variables.containsKey(content)) {
 
-                outputArea.append(variables.get(content) + "\n");
+                print(variables.get(content) + "\n");
             } else {
-                outputArea.append("Undefined variable: " + content + "\n");
+                error("Undefined variable: " + content + "\n");
             }
         } catch (Exception e) {
-            outputArea.append("Error parsing print command: " + line + "\n");
+            error("Error parsing print command: " + line + "\n");
         }
     }
 
@@ -662,9 +958,9 @@ class KotInterpreter {
     private void handleMultilinePrint(String line) {
         try {
             String content = line.substring(3, line.length() - 2).trim();
-            outputArea.append(content.replaceAll("\\\\n", "\n") + "\n");
+            print(content.replaceAll("\\\\n", "\n") + "\n");
         } catch (Exception e) {
-            outputArea.append("Error parsing multiline print command: " + line + "\n");
+            error("Error parsing multiline print command: " + line + "\n");
         }
     }
 }